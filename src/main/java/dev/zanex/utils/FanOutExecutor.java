@@ -0,0 +1,241 @@
+package dev.zanex.utils;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class FanOutExecutor {
+    private final int maxConcurrency;
+    private final Duration shardTimeout;
+    private final ShardQuery shardQuery;
+
+    /**
+     * Connection details of a single shard
+     */
+    public record ShardTarget(String name, String host, int port, String database, String username, String password) {
+        /**
+         * @return The shard details without the password, so results can be logged safely
+         */
+        @Override
+        public String toString() {
+            return "ShardTarget[name=" + name + ", host=" + host + ", port=" + port
+                    + ", database=" + database + ", username=" + username + "]";
+        }
+    }
+
+    /**
+     * Runs the query on a single shard and returns its rows
+     */
+    interface ShardQuery {
+        List<Map<String, Object>> query(ShardTarget target, String query, Object[] params) throws Exception;
+    }
+
+    /**
+     * Outcome of the query on a single shard
+     *
+     * @param target   The shard the query ran on
+     * @param rowCount Number of rows returned by the shard, 0 if the query failed
+     * @param latency  Time from starting the shard query until it finished, failed or timed out
+     * @param error    The query or merge failure, or null if the shard succeeded
+     */
+    public record ShardResult(ShardTarget target, int rowCount, Duration latency, Exception error) {
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Merged rows of all successful shards plus the per-shard outcomes in completion order
+     */
+    public record FanOutResult(List<Map<String, Object>> rows, List<ShardResult> shards) {
+        /**
+         * @return Whether every shard succeeded
+         */
+        public boolean isComplete() {
+            return shards.stream().allMatch(ShardResult::isSuccess);
+        }
+
+        /**
+         * @return The outcomes of the shards that failed or timed out
+         */
+        public List<ShardResult> getFailures() {
+            return shards.stream().filter(shard -> !shard.isSuccess()).toList();
+        }
+    }
+
+    /**
+     * Creates a new fan-out executor
+     *
+     * @param maxConcurrency Maximum number of shards queried at the same time
+     * @param shardTimeout   Maximum time a single shard may take, including connecting
+     */
+    public FanOutExecutor(int maxConcurrency, Duration shardTimeout) {
+        this(maxConcurrency, shardTimeout, (target, query, params) -> queryMySQL(target, query, params, shardTimeout));
+    }
+
+    /**
+     * Creates a new fan-out executor that queries shards through the given function
+     *
+     * @param maxConcurrency Maximum number of shards queried at the same time
+     * @param shardTimeout   Maximum time a single shard may take
+     * @param shardQuery     Runs the query on a single shard
+     */
+    FanOutExecutor(int maxConcurrency, Duration shardTimeout, ShardQuery shardQuery) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        Objects.requireNonNull(shardTimeout, "shardTimeout");
+        if (shardTimeout.isNegative() || shardTimeout.isZero()) {
+            throw new IllegalArgumentException("shardTimeout must be positive");
+        }
+        try {
+            shardTimeout.toNanos();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("shardTimeout is too large", ex);
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.shardTimeout = shardTimeout;
+        this.shardQuery = shardQuery;
+    }
+
+    /**
+     * Runs a query on all targets concurrently on virtual threads and merges the
+     * results as the shards finish. Failed or timed out shards, and shards whose rows
+     * the merger rejects, are reported in the result instead of failing the whole call.
+     * <p>
+     * A timed out shard keeps its concurrency slot until its query thread has actually
+     * stopped, and this call only returns once every query thread has stopped. Since
+     * Connector/J does not always react to interrupts, that can take until the driver's
+     * connectTimeout or socketTimeout (both set to the shard timeout) fires.
+     *
+     * @param targets The shards to query
+     * @param merger  How to combine the rows of the shards
+     * @param query   The SQL query to execute
+     * @param params  Parameters to substitute in the query
+     * @return Merged rows and per-shard outcomes
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public FanOutResult execute(Collection<ShardTarget> targets, ResultMerger merger, String query, Object... params) throws InterruptedException {
+        BlockingQueue<ShardOutcome> completed = new LinkedBlockingQueue<>();
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<ShardResult> shards = new ArrayList<>(targets.size());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (ShardTarget target : targets) {
+                executor.submit(() -> {
+                    long start = System.nanoTime();
+                    ShardOutcome outcome;
+                    try {
+                        outcome = runShard(executor, permits, target, query, params);
+                    } catch (Throwable ex) {
+                        // Every shard must post an outcome, otherwise the loop below waits forever
+                        outcome = ShardOutcome.failed(target, start, ex instanceof Exception e ? e : new ExecutionException(ex));
+                    }
+                    completed.add(outcome);
+                });
+            }
+
+            for (int i = 0; i < targets.size(); i++) {
+                ShardOutcome outcome = completed.take();
+                ShardResult shard = outcome.result();
+
+                if (shard.isSuccess()) {
+                    try {
+                        merger.accept(outcome.rows());
+                    } catch (RuntimeException ex) {
+                        shard = new ShardResult(shard.target(), shard.rowCount(), shard.latency(), ex);
+                    }
+                }
+                // Only the count is kept, the rows now live in the merger
+                shards.add(shard);
+            }
+        }
+
+        return new FanOutResult(merger.result(), shards);
+    }
+
+    /**
+     * Result of a shard together with its rows until they are handed to the merger
+     */
+    private record ShardOutcome(ShardResult result, List<Map<String, Object>> rows) {
+        static ShardOutcome failed(ShardTarget target, long start, Exception error) {
+            return new ShardOutcome(new ShardResult(target, 0, Duration.ofNanos(System.nanoTime() - start), error), List.of());
+        }
+    }
+
+    private ShardOutcome runShard(ExecutorService executor, Semaphore permits, ShardTarget target, String query, Object[] params) {
+        long start = System.nanoTime();
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return ShardOutcome.failed(target, start, ex);
+        }
+
+        // The permit belongs to the query thread and is only released once it really ends
+        start = System.nanoTime();
+        CompletableFuture<List<Map<String, Object>>> result = new CompletableFuture<>();
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        try {
+            executor.execute(() -> {
+                worker.set(Thread.currentThread());
+                try {
+                    // A shard that timed out before its thread got to run is skipped
+                    if (!result.isDone()) {
+                        result.complete(shardQuery.query(target, query, params));
+                    }
+                } catch (Throwable ex) {
+                    result.completeExceptionally(ex);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            permits.release();
+            return ShardOutcome.failed(target, start, ex);
+        }
+
+        try {
+            List<Map<String, Object>> rows;
+            try {
+                rows = result.get(shardTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException ex) {
+                TimeoutException timeout = new TimeoutException("Timed out after " + shardTimeout.toMillis() + " ms");
+                if (result.completeExceptionally(timeout)) {
+                    // Interrupting a virtual thread blocked on a socket closes the socket
+                    interrupt(worker);
+                    return ShardOutcome.failed(target, start, timeout);
+                }
+                // The query finished just as the timeout fired
+                rows = result.get();
+            }
+            return new ShardOutcome(new ShardResult(target, rows.size(), Duration.ofNanos(System.nanoTime() - start), null), rows);
+        } catch (ExecutionException ex) {
+            return ShardOutcome.failed(target, start, ex.getCause() instanceof Exception e ? e : ex);
+        } catch (InterruptedException ex) {
+            result.cancel(false);
+            interrupt(worker);
+            Thread.currentThread().interrupt();
+            return ShardOutcome.failed(target, start, ex);
+        }
+    }
+
+    private static void interrupt(AtomicReference<Thread> worker) {
+        Thread thread = worker.get();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private static List<Map<String, Object>> queryMySQL(ShardTarget target, String query, Object[] params, Duration timeout) throws SQLException {
+        // The driver enforces the timeout as well, since Connector/J pins the virtual thread while blocked
+        MySQLHandler handler = new MySQLHandler(target.host(), target.port(), target.database(), target.username(), target.password(), timeout);
+        try {
+            return handler.executeQuery(query, params);
+        } finally {
+            handler.close();
+        }
+    }
+}
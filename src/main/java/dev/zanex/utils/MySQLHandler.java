@@ -1,6 +1,8 @@
 package dev.zanex.utils;
 
+import java.io.IOException;
 import java.sql.*;
+import java.time.Duration;
 import java.util.*;
 
 public class MySQLHandler {
@@ -20,6 +22,23 @@ public class MySQLHandler {
         connection = DriverManager.getConnection("jdbc:mysql://" + host + ":" + port + "/" + database, username, password);
     }
 
+    /**
+     * Creates a new MySQL connection handler whose connect and socket reads time out
+     *
+     * @param host     MySQL server hostname
+     * @param port     MySQL server port
+     * @param database Database name
+     * @param username MySQL username
+     * @param password MySQL password
+     * @param timeout  Maximum time to connect and to wait for each server response
+     * @throws SQLException if connection fails
+     */
+    public MySQLHandler(String host, int port, String database, String username, String password, Duration timeout) throws SQLException {
+        long millis = Math.max(1, timeout.toMillis());
+        connection = DriverManager.getConnection("jdbc:mysql://" + host + ":" + port + "/" + database
+                + "?connectTimeout=" + millis + "&socketTimeout=" + millis, username, password);
+    }
+
     /**
      * Returns the underlying connection object
      *
@@ -60,6 +79,62 @@ public class MySQLHandler {
         }
     }
 
+    /**
+     * Executes a query that returns a result set (SELECT) into a container that keeps
+     * rows on the heap up to the given budget and spills the rest to a memory-mapped file.
+     * Rows are streamed from the server so the driver does not buffer the full result.
+     *
+     * @param heapBudgetBytes Estimated heap bytes to use for rows before spilling
+     * @param query The SQL query to execute
+     * @param params Parameters to substitute in the query
+     * @return Result that must be closed to delete its spill file
+     * @throws SQLException if query execution or spilling fails
+     */
+    public SpillableResult executeSpillableQuery(long heapBudgetBytes, String query, Object... params) throws SQLException {
+        SpillableResult results = null;
+        try (PreparedStatement statement = prepareStatement(query, params)) {
+            // Tells the MySQL driver to stream rows instead of reading the whole result into memory
+            statement.setFetchSize(Integer.MIN_VALUE);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                int columnCount = metaData.getColumnCount();
+
+                List<String> columnNames = new ArrayList<>();
+                for (int i = 1; i <= columnCount; i++) {
+                    columnNames.add(metaData.getColumnLabel(i));
+                }
+
+                results = new SpillableResult(columnNames, heapBudgetBytes);
+                Object[] row = new Object[columnCount];
+                while (resultSet.next()) {
+                    for (int i = 1; i <= columnCount; i++) {
+                        row[i - 1] = resultSet.getObject(i);
+                    }
+                    results.addRow(row);
+                }
+            }
+        } catch (Exception ex) {
+            // Any failure, including closing the statement, must remove the spill file before it propagates
+            if (results != null) {
+                try {
+                    results.close();
+                } catch (IOException closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+            }
+            if (ex instanceof SQLException sqlEx) {
+                throw sqlEx;
+            }
+            if (ex instanceof RuntimeException runtimeEx) {
+                throw runtimeEx;
+            }
+            throw new SQLException("Failed to spill result rows", ex);
+        }
+
+        return results;
+    }
+
     /**
      * Executes an update query (INSERT, UPDATE, DELETE, CREATE)
      *
@@ -0,0 +1,268 @@
+package dev.zanex.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+public interface ResultMerger {
+    /**
+     * Folds the rows of one shard into the merged result. Called once per
+     * successful shard, in the order the shards finish. If the rows cannot be
+     * merged an exception is thrown and the merged result is left unchanged,
+     * so the shard can be reported as failed without losing the others.
+     *
+     * @param rows Rows returned by the shard
+     */
+    void accept(List<Map<String, Object>> rows);
+
+    /**
+     * @return The merged rows of all shards accepted so far
+     */
+    List<Map<String, Object>> result();
+
+    /**
+     * Partial aggregate functions that can be combined across shards
+     */
+    enum Aggregation {
+        SUM,
+        COUNT,
+        MIN,
+        MAX
+    }
+
+    /**
+     * Appends the rows of each shard in arrival order
+     *
+     * @return A concatenating merger
+     */
+    static ResultMerger concatenate() {
+        return new ResultMerger() {
+            private final List<Map<String, Object>> merged = new ArrayList<>();
+
+            @Override
+            public void accept(List<Map<String, Object>> rows) {
+                merged.addAll(rows);
+            }
+
+            @Override
+            public List<Map<String, Object>> result() {
+                return merged;
+            }
+        };
+    }
+
+    /**
+     * Merges shard results that are each already sorted by the given column
+     * (e.g. via ORDER BY) into one sorted result. Values are compared in their
+     * natural order, with numbers of different types compared by value. Nulls
+     * sort first when ascending and last when descending, as in MySQL.
+     * <p>
+     * Strings are compared case-sensitively, unlike MySQL's default collations;
+     * use {@link #orderedBy(Comparator)} to match the collation of the column.
+     *
+     * @param column     Column the shard results are sorted by
+     * @param descending Whether the shard results are sorted descending
+     * @return An ordered merger
+     */
+    static ResultMerger orderedBy(String column, boolean descending) {
+        Comparator<Map<String, Object>> byColumn = Comparator.comparing(
+                row -> row.get(column), Comparator.nullsFirst(ResultMerger::compareValues));
+        return orderedBy(descending ? byColumn.reversed() : byColumn);
+    }
+
+    /**
+     * Merges shard results that are each already sorted by the given comparator
+     * into one sorted result. Rows that compare equal keep the order in which
+     * their shards finished. A shard whose rows are not sorted is rejected.
+     *
+     * @param comparator Order the shard results are sorted in
+     * @return An ordered merger
+     */
+    static ResultMerger orderedBy(Comparator<Map<String, Object>> comparator) {
+        return new ResultMerger() {
+            private final List<List<Map<String, Object>>> shards = new ArrayList<>();
+            private int rowCount;
+
+            @Override
+            public void accept(List<Map<String, Object>> rows) {
+                // Comparing here surfaces unsorted or incomparable rows against this shard
+                for (int i = 1; i < rows.size(); i++) {
+                    if (comparator.compare(rows.get(i - 1), rows.get(i)) > 0) {
+                        throw new IllegalArgumentException("Shard result is not sorted at row " + i);
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    for (List<Map<String, Object>> shard : shards) {
+                        comparator.compare(shard.get(0), rows.get(0));
+                    }
+                    shards.add(rows);
+                    rowCount += rows.size();
+                }
+            }
+
+            @Override
+            public List<Map<String, Object>> result() {
+                // Heap entries are {shard, position}, ties go to the shard that finished first
+                PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> {
+                    int order = comparator.compare(shards.get(a[0]).get(a[1]), shards.get(b[0]).get(b[1]));
+                    return order != 0 ? order : Integer.compare(a[0], b[0]);
+                });
+                for (int shard = 0; shard < shards.size(); shard++) {
+                    heads.add(new int[]{shard, 0});
+                }
+
+                List<Map<String, Object>> merged = new ArrayList<>(rowCount);
+                while (!heads.isEmpty()) {
+                    int[] head = heads.poll();
+                    List<Map<String, Object>> shard = shards.get(head[0]);
+                    merged.add(shard.get(head[1]));
+                    if (++head[1] < shard.size()) {
+                        heads.add(head);
+                    }
+                }
+                return merged;
+            }
+        };
+    }
+
+    /**
+     * Combines per-shard partial aggregates, e.g. the rows of
+     * {@code SELECT region, COUNT(*) AS n, MAX(created) AS last FROM t GROUP BY region}.
+     * Counts and sums are added up, widening to BigInteger on overflow, minimums and
+     * maximums are compared. Numbers of different types are compared by value.
+     *
+     * @param groupColumns Columns the shard results are grouped by, may be empty
+     * @param aggregates   Aggregated columns and how to combine them
+     * @return An aggregating merger
+     */
+    static ResultMerger aggregate(List<String> groupColumns, Map<String, Aggregation> aggregates) {
+        return new ResultMerger() {
+            private final Map<List<Object>, Map<String, Object>> groups = new LinkedHashMap<>();
+
+            @Override
+            public void accept(List<Map<String, Object>> rows) {
+                // Combine into copies first so a failing row leaves the groups untouched
+                Map<List<Object>, Map<String, Object>> updated = new LinkedHashMap<>();
+                for (Map<String, Object> row : rows) {
+                    List<Object> key = new ArrayList<>(groupColumns.size());
+                    for (String column : groupColumns) {
+                        key.add(groupKey(row.get(column)));
+                    }
+
+                    Map<String, Object> group = updated.get(key);
+                    if (group == null) {
+                        Map<String, Object> existing = groups.get(key);
+                        if (existing == null) {
+                            group = new LinkedHashMap<>();
+                            for (String column : groupColumns) {
+                                group.put(column, row.get(column));
+                            }
+                            for (String column : aggregates.keySet()) {
+                                group.put(column, row.get(column));
+                            }
+                            updated.put(key, group);
+                            continue;
+                        }
+                        group = new LinkedHashMap<>(existing);
+                        updated.put(key, group);
+                    }
+
+                    for (Map.Entry<String, Aggregation> entry : aggregates.entrySet()) {
+                        String column = entry.getKey();
+                        group.put(column, combine(entry.getValue(), group.get(column), row.get(column)));
+                    }
+                }
+                groups.putAll(updated);
+            }
+
+            @Override
+            public List<Map<String, Object>> result() {
+                return new ArrayList<>(groups.values());
+            }
+        };
+    }
+
+    /**
+     * Widens integral group values so an INT on one shard and a BIGINT on another land in the same group
+     */
+    private static Object groupKey(Object value) {
+        if (value instanceof Byte || value instanceof Short || value instanceof Integer) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
+    private static Object combine(Aggregation aggregation, Object current, Object value) {
+        if (current == null) {
+            return value;
+        }
+        if (value == null) {
+            return current;
+        }
+
+        return switch (aggregation) {
+            case SUM, COUNT -> add((Number) current, (Number) value);
+            case MIN -> compareValues(current, value) <= 0 ? current : value;
+            case MAX -> compareValues(current, value) >= 0 ? current : value;
+        };
+    }
+
+    private static Number add(Number a, Number b) {
+        if (a instanceof BigDecimal || b instanceof BigDecimal) {
+            return toBigDecimal(a).add(toBigDecimal(b));
+        }
+        if (isFloatingPoint(a) || isFloatingPoint(b)) {
+            return a.doubleValue() + b.doubleValue();
+        }
+        if (a instanceof BigInteger || b instanceof BigInteger) {
+            return toBigInteger(a).add(toBigInteger(b));
+        }
+        try {
+            return Math.addExact(a.longValue(), b.longValue());
+        } catch (ArithmeticException ex) {
+            return toBigInteger(a).add(toBigInteger(b));
+        }
+    }
+
+    private static boolean isFloatingPoint(Number number) {
+        return number instanceof Double || number instanceof Float;
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (number instanceof BigInteger integer) {
+            return new BigDecimal(integer);
+        }
+        if (isFloatingPoint(number)) {
+            return BigDecimal.valueOf(number.doubleValue());
+        }
+        return BigDecimal.valueOf(number.longValue());
+    }
+
+    private static BigInteger toBigInteger(Number number) {
+        return number instanceof BigInteger integer ? integer : BigInteger.valueOf(number.longValue());
+    }
+
+    /**
+     * Compares two column values, widening numbers of different types (e.g. Integer
+     * from one shard and Long from another) before comparing them
+     *
+     * @throws ClassCastException if the values are not mutually comparable
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object a, Object b) {
+        if (a instanceof Number x && b instanceof Number y && a.getClass() != b.getClass()) {
+            if (isFloatingPoint(x) || isFloatingPoint(y)) {
+                double dx = x.doubleValue();
+                double dy = y.doubleValue();
+                if (Double.isNaN(dx) || Double.isNaN(dy) || Double.isInfinite(dx) || Double.isInfinite(dy)) {
+                    return Double.compare(dx, dy);
+                }
+            }
+            return toBigDecimal(x).compareTo(toBigDecimal(y));
+        }
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+}
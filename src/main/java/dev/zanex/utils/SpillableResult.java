@@ -0,0 +1,517 @@
+package dev.zanex.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.*;
+
+public class SpillableResult implements Iterable<Map<String, Object>>, AutoCloseable {
+    private static final int REGION_SIZE = 64 * 1024 * 1024;
+
+    // Value type tags of the binary row encoding
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte BIG_DECIMAL = 9;
+    private static final byte BIG_INTEGER = 10;
+    private static final byte BYTES = 11;
+    private static final byte SQL_DATE = 12;
+    private static final byte SQL_TIME = 13;
+    private static final byte SQL_TIMESTAMP = 14;
+    private static final byte LOCAL_DATE = 15;
+    private static final byte LOCAL_TIME = 16;
+    private static final byte LOCAL_DATE_TIME = 17;
+    private static final byte OFFSET_DATE_TIME = 18;
+    private static final byte OFFSET_TIME = 19;
+    private static final byte ZONED_DATE_TIME = 20;
+    private static final byte INSTANT = 21;
+
+    private final String[] columnNames;
+    private final long heapBudgetBytes;
+    private final Path spillDirectory;
+
+    private final List<Object[]> heapRows = new ArrayList<>();
+    private long heapBytes;
+    private boolean spilling;
+
+    private Path spillFile;
+    private FileChannel spillChannel;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private long mappedBytes;
+    private ByteBuffer scratch = ByteBuffer.allocate(8 * 1024);
+
+    // Each spilled row is addressed by (region index << 32 | offset in region)
+    private long[] spilledRows = new long[1024];
+    private int spilledCount;
+
+    private boolean closed;
+
+    /**
+     * Creates an empty result that keeps rows on the heap until the budget is used up
+     *
+     * @param columnNames    Column labels in result set order
+     * @param heapBudgetBytes Estimated heap bytes to use for rows before spilling
+     * @param spillDirectory Directory for the memory-mapped spill file
+     */
+    public SpillableResult(List<String> columnNames, long heapBudgetBytes, Path spillDirectory) {
+        this.columnNames = columnNames.toArray(new String[0]);
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Creates an empty result that spills to the default temporary directory
+     *
+     * @param columnNames    Column labels in result set order
+     * @param heapBudgetBytes Estimated heap bytes to use for rows before spilling
+     */
+    public SpillableResult(List<String> columnNames, long heapBudgetBytes) {
+        this(columnNames, heapBudgetBytes, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Appends a copy of a row. Once the heap budget is exceeded all further rows are spilled,
+     * so row order is always heap rows first followed by spilled rows. Values must be of a
+     * type the spill encoding supports even while the row stays on the heap, so that a
+     * column's Java type never depends on where the row ended up.
+     *
+     * @param values Column values in the same order as the column names
+     * @throws IOException if writing to the spill file fails
+     * @throws IllegalArgumentException if a value has an unsupported type
+     */
+    public void addRow(Object[] values) throws IOException {
+        ensureOpen();
+        if (values.length != columnNames.length) {
+            throw new IllegalArgumentException("Expected " + columnNames.length + " values but got " + values.length);
+        }
+
+        if (!spilling) {
+            for (Object value : values) {
+                typeOf(value);
+            }
+
+            long rowBytes = estimateRowSize(values);
+            if (heapBytes + rowBytes <= heapBudgetBytes) {
+                heapRows.add(values.clone());
+                heapBytes += rowBytes;
+                return;
+            }
+            spilling = true;
+        }
+
+        spill(values);
+    }
+
+    /**
+     * Returns the row at the given index
+     *
+     * @param index Zero based row index
+     * @return Map of column label to value
+     */
+    public Map<String, Object> get(int index) {
+        return toMap(getValues(index));
+    }
+
+    /**
+     * Returns the raw column values of the row at the given index
+     *
+     * @param index Zero based row index
+     * @return Column values in the same order as the column names
+     */
+    public Object[] getValues(int index) {
+        ensureOpen();
+        Objects.checkIndex(index, size());
+
+        if (index < heapRows.size()) {
+            return heapRows.get(index).clone();
+        }
+        return readSpilledRow(spilledRows[index - heapRows.size()]);
+    }
+
+    /**
+     * @return Total number of rows
+     */
+    public int size() {
+        return heapRows.size() + spilledCount;
+    }
+
+    /**
+     * @return Number of rows held off-heap in the spill file
+     */
+    public int getSpilledRowCount() {
+        return spilledCount;
+    }
+
+    /**
+     * @return Column labels in result set order
+     */
+    public List<String> getColumnNames() {
+        return List.of(columnNames);
+    }
+
+    /**
+     * Scans all rows sequentially, heap rows first
+     *
+     * @return Iterator over the rows
+     */
+    @Override
+    public Iterator<Map<String, Object>> iterator() {
+        ensureOpen();
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Releases the heap rows and deletes the spill file
+     *
+     * @throws IOException if closing the spill file fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        heapRows.clear();
+        regions.clear();
+        spilledRows = null;
+
+        if (spillChannel != null) {
+            spillChannel.close();
+            // Mapped regions may keep the file open on some platforms until they are collected
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException ignored) {
+                spillFile.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private void spill(Object[] values) throws IOException {
+        if (spillChannel == null) {
+            spillFile = Files.createTempFile(spillDirectory, "spill-", ".rows");
+            spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        scratch.clear();
+        for (Object value : values) {
+            writeValue(value);
+        }
+        scratch.flip();
+        int length = scratch.remaining();
+
+        MappedByteBuffer region = regions.isEmpty() ? null : regions.get(regions.size() - 1);
+        if (region == null || region.remaining() < Integer.BYTES + length) {
+            int regionSize = Math.max(REGION_SIZE, Integer.BYTES + length);
+            region = spillChannel.map(FileChannel.MapMode.READ_WRITE, mappedBytes, regionSize);
+            mappedBytes += regionSize;
+            regions.add(region);
+        }
+
+        if (spilledCount == spilledRows.length) {
+            spilledRows = Arrays.copyOf(spilledRows, spilledCount * 2);
+        }
+        spilledRows[spilledCount++] = ((long) (regions.size() - 1) << 32) | region.position();
+
+        region.putInt(length);
+        region.put(scratch);
+    }
+
+    private Object[] readSpilledRow(long address) {
+        MappedByteBuffer region = regions.get((int) (address >>> 32));
+        int offset = (int) address;
+        int length = region.getInt(offset);
+        ByteBuffer row = region.slice(offset + Integer.BYTES, length);
+
+        Object[] values = new Object[columnNames.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readValue(row);
+        }
+        return values;
+    }
+
+    /**
+     * Maps a value to its tag in the binary row encoding
+     *
+     * @throws IllegalArgumentException if the value type cannot be encoded
+     */
+    private static byte typeOf(Object value) {
+        if (value == null) {
+            return NULL;
+        } else if (value instanceof String) {
+            return STRING;
+        } else if (value instanceof Integer) {
+            return INTEGER;
+        } else if (value instanceof Long) {
+            return LONG;
+        } else if (value instanceof Double) {
+            return DOUBLE;
+        } else if (value instanceof Float) {
+            return FLOAT;
+        } else if (value instanceof Short) {
+            return SHORT;
+        } else if (value instanceof Byte) {
+            return BYTE;
+        } else if (value instanceof Boolean) {
+            return BOOLEAN;
+        } else if (value instanceof BigDecimal) {
+            return BIG_DECIMAL;
+        } else if (value instanceof BigInteger) {
+            return BIG_INTEGER;
+        } else if (value instanceof byte[]) {
+            return BYTES;
+        } else if (value instanceof Date) {
+            return SQL_DATE;
+        } else if (value instanceof Time) {
+            return SQL_TIME;
+        } else if (value instanceof Timestamp) {
+            return SQL_TIMESTAMP;
+        } else if (value instanceof LocalDate) {
+            return LOCAL_DATE;
+        } else if (value instanceof LocalTime) {
+            return LOCAL_TIME;
+        } else if (value instanceof LocalDateTime) {
+            return LOCAL_DATE_TIME;
+        } else if (value instanceof OffsetDateTime) {
+            return OFFSET_DATE_TIME;
+        } else if (value instanceof OffsetTime) {
+            return OFFSET_TIME;
+        } else if (value instanceof ZonedDateTime) {
+            return ZONED_DATE_TIME;
+        } else if (value instanceof Instant) {
+            return INSTANT;
+        }
+        throw new IllegalArgumentException("Unsupported column value type " + value.getClass().getName());
+    }
+
+    private void writeValue(Object value) {
+        byte type = typeOf(value);
+        switch (type) {
+            case NULL -> {
+                ensureScratch(1);
+                scratch.put(NULL);
+            }
+            case STRING -> writeBytes(STRING, ((String) value).getBytes(StandardCharsets.UTF_8));
+            case INTEGER -> {
+                ensureScratch(1 + Integer.BYTES);
+                scratch.put(INTEGER).putInt((Integer) value);
+            }
+            case LONG -> {
+                ensureScratch(1 + Long.BYTES);
+                scratch.put(LONG).putLong((Long) value);
+            }
+            case DOUBLE -> {
+                ensureScratch(1 + Double.BYTES);
+                scratch.put(DOUBLE).putDouble((Double) value);
+            }
+            case FLOAT -> {
+                ensureScratch(1 + Float.BYTES);
+                scratch.put(FLOAT).putFloat((Float) value);
+            }
+            case SHORT -> {
+                ensureScratch(1 + Short.BYTES);
+                scratch.put(SHORT).putShort((Short) value);
+            }
+            case BYTE -> {
+                ensureScratch(2);
+                scratch.put(BYTE).put((Byte) value);
+            }
+            case BOOLEAN -> {
+                ensureScratch(2);
+                scratch.put(BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+            }
+            case BIG_DECIMAL -> writeBytes(BIG_DECIMAL, value.toString().getBytes(StandardCharsets.US_ASCII));
+            case BIG_INTEGER -> writeBytes(BIG_INTEGER, ((BigInteger) value).toByteArray());
+            case BYTES -> writeBytes(BYTES, (byte[]) value);
+            case SQL_DATE -> {
+                ensureScratch(1 + Long.BYTES);
+                scratch.put(SQL_DATE).putLong(((Date) value).getTime());
+            }
+            case SQL_TIME -> {
+                ensureScratch(1 + Long.BYTES);
+                scratch.put(SQL_TIME).putLong(((Time) value).getTime());
+            }
+            case SQL_TIMESTAMP -> {
+                Timestamp t = (Timestamp) value;
+                ensureScratch(1 + Long.BYTES + Integer.BYTES);
+                scratch.put(SQL_TIMESTAMP).putLong(t.getTime()).putInt(t.getNanos());
+            }
+            case LOCAL_DATE -> {
+                ensureScratch(1 + Long.BYTES);
+                scratch.put(LOCAL_DATE).putLong(((LocalDate) value).toEpochDay());
+            }
+            case LOCAL_TIME -> {
+                ensureScratch(1 + Long.BYTES);
+                scratch.put(LOCAL_TIME).putLong(((LocalTime) value).toNanoOfDay());
+            }
+            case LOCAL_DATE_TIME -> {
+                ensureScratch(1);
+                scratch.put(LOCAL_DATE_TIME);
+                writeDateTime((LocalDateTime) value);
+            }
+            case OFFSET_DATE_TIME -> {
+                OffsetDateTime t = (OffsetDateTime) value;
+                ensureScratch(1 + Integer.BYTES);
+                scratch.put(OFFSET_DATE_TIME).putInt(t.getOffset().getTotalSeconds());
+                writeDateTime(t.toLocalDateTime());
+            }
+            case OFFSET_TIME -> {
+                OffsetTime t = (OffsetTime) value;
+                ensureScratch(1 + Long.BYTES + Integer.BYTES);
+                scratch.put(OFFSET_TIME).putLong(t.toLocalTime().toNanoOfDay()).putInt(t.getOffset().getTotalSeconds());
+            }
+            case ZONED_DATE_TIME -> {
+                ZonedDateTime t = (ZonedDateTime) value;
+                writeBytes(ZONED_DATE_TIME, t.getZone().getId().getBytes(StandardCharsets.US_ASCII));
+                // The offset disambiguates local times that occur twice when DST ends
+                ensureScratch(Integer.BYTES);
+                scratch.putInt(t.getOffset().getTotalSeconds());
+                writeDateTime(t.toLocalDateTime());
+            }
+            case INSTANT -> {
+                Instant t = (Instant) value;
+                ensureScratch(1 + Long.BYTES + Integer.BYTES);
+                scratch.put(INSTANT).putLong(t.getEpochSecond()).putInt(t.getNano());
+            }
+            default -> throw new IllegalStateException("Unhandled type tag " + type);
+        }
+    }
+
+    private void writeDateTime(LocalDateTime t) {
+        ensureScratch(Long.BYTES * 2);
+        scratch.putLong(t.toLocalDate().toEpochDay()).putLong(t.toLocalTime().toNanoOfDay());
+    }
+
+    private void writeBytes(byte type, byte[] bytes) {
+        ensureScratch(1 + Integer.BYTES + bytes.length);
+        scratch.put(type).putInt(bytes.length).put(bytes);
+    }
+
+    private Object readValue(ByteBuffer row) {
+        byte type = row.get();
+        return switch (type) {
+            case NULL -> null;
+            case STRING -> new String(readBytes(row), StandardCharsets.UTF_8);
+            case INTEGER -> row.getInt();
+            case LONG -> row.getLong();
+            case DOUBLE -> row.getDouble();
+            case FLOAT -> row.getFloat();
+            case SHORT -> row.getShort();
+            case BYTE -> row.get();
+            case BOOLEAN -> row.get() != 0;
+            case BIG_DECIMAL -> new BigDecimal(new String(readBytes(row), StandardCharsets.US_ASCII));
+            case BIG_INTEGER -> new BigInteger(readBytes(row));
+            case BYTES -> readBytes(row);
+            case SQL_DATE -> new Date(row.getLong());
+            case SQL_TIME -> new Time(row.getLong());
+            case SQL_TIMESTAMP -> {
+                Timestamp timestamp = new Timestamp(row.getLong());
+                timestamp.setNanos(row.getInt());
+                yield timestamp;
+            }
+            case LOCAL_DATE -> LocalDate.ofEpochDay(row.getLong());
+            case LOCAL_TIME -> LocalTime.ofNanoOfDay(row.getLong());
+            case LOCAL_DATE_TIME -> readDateTime(row);
+            case OFFSET_DATE_TIME -> {
+                ZoneOffset offset = ZoneOffset.ofTotalSeconds(row.getInt());
+                yield OffsetDateTime.of(readDateTime(row), offset);
+            }
+            case OFFSET_TIME -> OffsetTime.of(LocalTime.ofNanoOfDay(row.getLong()), ZoneOffset.ofTotalSeconds(row.getInt()));
+            case ZONED_DATE_TIME -> {
+                ZoneId zone = ZoneId.of(new String(readBytes(row), StandardCharsets.US_ASCII));
+                ZoneOffset offset = ZoneOffset.ofTotalSeconds(row.getInt());
+                yield ZonedDateTime.ofLocal(readDateTime(row), zone, offset);
+            }
+            case INSTANT -> Instant.ofEpochSecond(row.getLong(), row.getInt());
+            default -> throw new UncheckedIOException(new IOException("Corrupt spill file, unknown type tag " + type));
+        };
+    }
+
+    private LocalDateTime readDateTime(ByteBuffer row) {
+        return LocalDateTime.of(LocalDate.ofEpochDay(row.getLong()), LocalTime.ofNanoOfDay(row.getLong()));
+    }
+
+    private byte[] readBytes(ByteBuffer row) {
+        byte[] bytes = new byte[row.getInt()];
+        row.get(bytes);
+        return bytes;
+    }
+
+    private void ensureScratch(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+            scratch.flip();
+            grown.put(scratch);
+            scratch = grown;
+        }
+    }
+
+    private Map<String, Object> toMap(Object[] values) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < columnNames.length; i++) {
+            row.put(columnNames[i], values[i]);
+        }
+        return row;
+    }
+
+    /**
+     * Rough shallow-plus-payload estimate of the heap used by a row
+     */
+    private long estimateRowSize(Object[] values) {
+        long size = 16 + 8L * values.length;
+        for (Object value : values) {
+            if (value == null) {
+                continue;
+            }
+            if (value instanceof String s) {
+                size += 40 + s.length();
+            } else if (value instanceof byte[] bytes) {
+                size += 16 + bytes.length;
+            } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+                size += 64;
+            } else {
+                size += 24;
+            }
+        }
+        return size;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Result has been closed");
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package dev.zanex.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FanOutExecutorTest {
+    private static List<FanOutExecutor.ShardTarget> targets(int count) {
+        List<FanOutExecutor.ShardTarget> targets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            targets.add(new FanOutExecutor.ShardTarget("shard" + i, "db" + i, 3306, "app", "reader", "secret"));
+        }
+        return targets;
+    }
+
+    private static List<Map<String, Object>> rowsOf(FanOutExecutor.ShardTarget target) {
+        return List.of(Map.of("shard", target.name()));
+    }
+
+    private static FanOutExecutor.ShardResult shard(FanOutExecutor.FanOutResult result, String name) {
+        return result.shards().stream()
+                .filter(shard -> shard.target().name().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void runsAtMostMaxConcurrencyShardsAtOnce() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        FanOutExecutor executor = new FanOutExecutor(3, Duration.ofSeconds(10), (target, query, params) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } finally {
+                running.decrementAndGet();
+            }
+            return rowsOf(target);
+        });
+
+        FanOutExecutor.FanOutResult result = executor.execute(targets(12), ResultMerger.concatenate(), "SELECT 1");
+
+        assertTrue(result.isComplete());
+        assertEquals(12, result.rows().size());
+        assertEquals(3, maxRunning.get());
+    }
+
+    @Test
+    void slowShardTimesOutWhileOthersAreMerged() throws InterruptedException {
+        FanOutExecutor executor = new FanOutExecutor(4, Duration.ofMillis(200), (target, query, params) -> {
+            if (target.name().equals("shard1")) {
+                Thread.sleep(30_000);
+            }
+            return rowsOf(target);
+        });
+
+        long start = System.nanoTime();
+        FanOutExecutor.FanOutResult result = executor.execute(targets(3), ResultMerger.concatenate(), "SELECT 1");
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertTrue(elapsed.compareTo(Duration.ofSeconds(10)) < 0, "interrupted shard should not hold up the call");
+        assertFalse(result.isComplete());
+        assertEquals(1, result.getFailures().size());
+
+        FanOutExecutor.ShardResult slow = shard(result, "shard1");
+        assertInstanceOf(TimeoutException.class, slow.error());
+        assertEquals(0, slow.rowCount());
+        assertTrue(slow.latency().compareTo(Duration.ofMillis(200)) >= 0);
+
+        Set<Object> merged = new HashSet<>();
+        for (Map<String, Object> row : result.rows()) {
+            merged.add(row.get("shard"));
+        }
+        assertEquals(Set.of("shard0", "shard2"), merged);
+    }
+
+    @Test
+    void timedOutShardKeepsItsSlotUntilItsQueryStops() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        FanOutExecutor executor = new FanOutExecutor(1, Duration.ofMillis(50), (target, query, params) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                // Ignores interrupts for a while, like a driver that does not react to them
+                long until = System.nanoTime() + Duration.ofMillis(150).toNanos();
+                while (System.nanoTime() < until) {
+                    try {
+                        Thread.sleep(Duration.ofNanos(Math.max(1, until - System.nanoTime())));
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            } finally {
+                running.decrementAndGet();
+            }
+            return rowsOf(target);
+        });
+
+        FanOutExecutor.FanOutResult result = executor.execute(targets(3), ResultMerger.concatenate(), "SELECT 1");
+
+        assertEquals(3, result.getFailures().size());
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    void failingShardIsReportedWithItsError() throws InterruptedException {
+        SQLException failure = new SQLException("Unknown table");
+        FanOutExecutor executor = new FanOutExecutor(2, Duration.ofSeconds(10), (target, query, params) -> {
+            if (target.name().equals("shard0")) {
+                throw failure;
+            }
+            return rowsOf(target);
+        });
+
+        FanOutExecutor.FanOutResult result = executor.execute(targets(3), ResultMerger.concatenate(), "SELECT 1");
+
+        assertFalse(result.isComplete());
+        assertSame(failure, shard(result, "shard0").error());
+        assertEquals(2, result.rows().size());
+    }
+
+    @Test
+    void unexpectedExceptionsStillProduceAnOutcome() throws InterruptedException {
+        FanOutExecutor executor = new FanOutExecutor(2, Duration.ofSeconds(10), (target, query, params) -> {
+            if (target.name().equals("shard0")) {
+                return null;
+            }
+            if (target.name().equals("shard1")) {
+                throw new AssertionError("boom");
+            }
+            return rowsOf(target);
+        });
+
+        FanOutExecutor.FanOutResult result = executor.execute(targets(3), ResultMerger.concatenate(), "SELECT 1");
+
+        assertEquals(3, result.shards().size());
+        assertEquals(2, result.getFailures().size());
+        assertEquals(1, result.rows().size());
+    }
+
+    @Test
+    void mergeFailureIsRecordedAgainstTheShard() throws InterruptedException {
+        FanOutExecutor executor = new FanOutExecutor(2, Duration.ofSeconds(10), (target, query, params) ->
+                List.of(Map.of("k", target.name().equals("shard0") ? "text" : 1)));
+
+        FanOutExecutor.FanOutResult result = executor.execute(targets(2), ResultMerger.orderedBy("k", false), "SELECT 1");
+
+        assertEquals(1, result.getFailures().size());
+        assertInstanceOf(ClassCastException.class, result.getFailures().get(0).error());
+        assertEquals(1, result.rows().size());
+    }
+
+    @Test
+    void latenciesAndRowCountsAreReported() throws InterruptedException {
+        FanOutExecutor executor = new FanOutExecutor(4, Duration.ofSeconds(10), (target, query, params) -> {
+            Thread.sleep(target.name().equals("shard0") ? 100 : 10);
+            return List.of(Map.of("n", 1), Map.of("n", 2));
+        });
+
+        FanOutExecutor.FanOutResult result = executor.execute(targets(3), ResultMerger.concatenate(), "SELECT 1");
+
+        for (FanOutExecutor.ShardResult shard : result.shards()) {
+            assertNotNull(shard.latency());
+            assertTrue(shard.latency().compareTo(Duration.ofMillis(10)) >= 0);
+            assertEquals(2, shard.rowCount());
+        }
+        assertTrue(shard(result, "shard0").latency().compareTo(Duration.ofMillis(100)) >= 0);
+    }
+
+    @Test
+    void rejectsInvalidTimeouts() {
+        FanOutExecutor.ShardQuery query = (target, sql, params) -> List.of();
+
+        assertThrows(NullPointerException.class, () -> new FanOutExecutor(1, null, query));
+        assertThrows(IllegalArgumentException.class, () -> new FanOutExecutor(1, Duration.ZERO, query));
+        assertThrows(IllegalArgumentException.class, () -> new FanOutExecutor(1, Duration.ofMillis(-1), query));
+        assertThrows(IllegalArgumentException.class, () -> new FanOutExecutor(1, Duration.ofSeconds(Long.MAX_VALUE), query));
+        assertThrows(IllegalArgumentException.class, () -> new FanOutExecutor(0, Duration.ofSeconds(1), query));
+    }
+
+    @Test
+    void targetToStringOmitsThePassword() {
+        String text = new FanOutExecutor.ShardTarget("eu1", "db.example", 3306, "app", "reader", "hunter2").toString();
+
+        assertFalse(text.contains("hunter2"));
+        assertTrue(text.contains("eu1"));
+    }
+}
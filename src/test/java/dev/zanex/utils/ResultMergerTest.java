@@ -0,0 +1,120 @@
+package dev.zanex.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultMergerTest {
+    private static Map<String, Object> row(Object... keysAndValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            row.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return row;
+    }
+
+    private static List<Object> column(List<Map<String, Object>> rows, String column) {
+        List<Object> values = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            values.add(row.get(column));
+        }
+        return values;
+    }
+
+    @Test
+    void concatenateKeepsArrivalOrder() {
+        ResultMerger merger = ResultMerger.concatenate();
+        merger.accept(List.of(row("k", 2), row("k", 1)));
+        merger.accept(List.of(row("k", 3)));
+
+        assertEquals(List.of(2, 1, 3), column(merger.result(), "k"));
+    }
+
+    @Test
+    void orderedByMergesSortedShards() {
+        ResultMerger merger = ResultMerger.orderedBy("k", false);
+        merger.accept(List.of(row("k", 1), row("k", 4), row("k", 7)));
+        merger.accept(List.of(row("k", 2L), row("k", 5L)));
+        merger.accept(List.of());
+        merger.accept(List.of(row("k", null), row("k", 3), row("k", 6)));
+
+        assertEquals(Arrays.asList(null, 1, 2L, 3, 4, 5L, 6, 7), column(merger.result(), "k"));
+    }
+
+    @Test
+    void orderedByDescendingPutsNullsLast() {
+        ResultMerger merger = ResultMerger.orderedBy("k", true);
+        merger.accept(List.of(row("k", 9), row("k", 3), row("k", null)));
+        merger.accept(List.of(row("k", 5)));
+
+        assertEquals(Arrays.asList(9, 5, 3, null), column(merger.result(), "k"));
+    }
+
+    @Test
+    void orderedByAcceptsACollationComparator() {
+        ResultMerger merger = ResultMerger.orderedBy(
+                Comparator.comparing(row -> (String) row.get("name"), String.CASE_INSENSITIVE_ORDER));
+        merger.accept(List.of(row("name", "apple"), row("name", "Cherry")));
+        merger.accept(List.of(row("name", "Banana")));
+
+        assertEquals(List.of("apple", "Banana", "Cherry"), column(merger.result(), "name"));
+    }
+
+    @Test
+    void orderedByRejectsUnsortedAndIncomparableShards() {
+        ResultMerger merger = ResultMerger.orderedBy("k", false);
+        merger.accept(List.of(row("k", 1), row("k", 3)));
+
+        assertThrows(IllegalArgumentException.class, () -> merger.accept(List.of(row("k", 5), row("k", 2))));
+        assertThrows(ClassCastException.class, () -> merger.accept(List.of(row("k", "text"))));
+
+        assertEquals(List.of(1, 3), column(merger.result(), "k"));
+    }
+
+    @Test
+    void aggregateCombinesPartialAggregatesPerGroup() {
+        Map<String, ResultMerger.Aggregation> aggregates = new LinkedHashMap<>();
+        aggregates.put("n", ResultMerger.Aggregation.COUNT);
+        aggregates.put("total", ResultMerger.Aggregation.SUM);
+        aggregates.put("low", ResultMerger.Aggregation.MIN);
+        aggregates.put("high", ResultMerger.Aggregation.MAX);
+        ResultMerger merger = ResultMerger.aggregate(List.of("region"), aggregates);
+
+        merger.accept(List.of(
+                row("region", "eu", "n", 3L, "total", 10, "low", 2, "high", 8),
+                row("region", "us", "n", 1L, "total", 4, "low", 4, "high", 4)));
+        merger.accept(List.of(
+                row("region", "eu", "n", 2L, "total", 5L, "low", 1L, "high", 20L)));
+
+        List<Map<String, Object>> result = merger.result();
+        assertEquals(2, result.size());
+        assertEquals(row("region", "eu", "n", 5L, "total", 15L, "low", 1L, "high", 20L), result.get(0));
+        assertEquals(row("region", "us", "n", 1L, "total", 4, "low", 4, "high", 4), result.get(1));
+    }
+
+    @Test
+    void aggregateWidensIntegralGroupKeysAndOverflowingSums() {
+        ResultMerger merger = ResultMerger.aggregate(List.of("id"), Map.of("total", ResultMerger.Aggregation.SUM));
+        merger.accept(List.of(row("id", 1, "total", Long.MAX_VALUE)));
+        merger.accept(List.of(row("id", 1L, "total", 1L)));
+
+        List<Map<String, Object>> result = merger.result();
+        assertEquals(1, result.size());
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE), result.get(0).get("total"));
+    }
+
+    @Test
+    void aggregateLeavesGroupsUntouchedWhenAShardFails() {
+        ResultMerger merger = ResultMerger.aggregate(List.of("region"), Map.of("high", ResultMerger.Aggregation.MAX));
+        merger.accept(List.of(row("region", "eu", "high", 5), row("region", "us", "high", 7)));
+
+        assertThrows(ClassCastException.class, () -> merger.accept(List.of(
+                row("region", "eu", "high", 9),
+                row("region", "us", "high", "not a number"))));
+
+        assertEquals(List.of(5, 7), column(merger.result(), "high"));
+    }
+}
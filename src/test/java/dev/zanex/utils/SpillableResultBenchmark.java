@@ -0,0 +1,171 @@
+package dev.zanex.utils;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares GC pause time and throughput of {@link MySQLHandler#executeQuery} against
+ * {@link MySQLHandler#executeSpillableQuery}. Each approach runs in its own JVM so the
+ * collector statistics of one do not leak into the other:
+ *
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -Xmx2g -cp target/classes:target/test-classes:$(cat cp.txt) dev.zanex.utils.SpillableResultBenchmark heap 5000000
+ * java -Xmx2g -cp target/classes:target/test-classes:$(cat cp.txt) dev.zanex.utils.SpillableResultBenchmark spill 5000000 64
+ * </pre>
+ *
+ * Arguments are {@code <heap|spill> <rows> [heapBudgetMB] [host port database username password]}.
+ * Without connection details the rows are generated in-process with the same shape, which
+ * measures the containers alone. GC figures are stop-the-world pauses only, for every
+ * collector; concurrent ZGC/Shenandoah cycle time is not counted.
+ */
+public class SpillableResultBenchmark {
+    private static final String QUERY = "WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < ?) "
+            + "SELECT n AS id, CONCAT('row-', n) AS name, n * 1.25 AS amount, NOW() + INTERVAL n SECOND AS created FROM seq";
+    private static final List<String> COLUMNS = List.of("id", "name", "amount", "created");
+    private static final int RANDOM_READS = 1_000_000;
+
+    private static final AtomicLong gcCount = new AtomicLong();
+    private static final AtomicLong gcTotalMillis = new AtomicLong();
+    private static final AtomicLong gcMaxMillis = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: SpillableResultBenchmark <heap|spill> <rows> [heapBudgetMB] [host port database username password]");
+            System.exit(1);
+        }
+
+        boolean spill = args[0].equals("spill");
+        int rows = Integer.parseInt(args[1]);
+        long heapBudgetBytes = (args.length > 2 ? Long.parseLong(args[2]) : 64) * 1024 * 1024;
+        MySQLHandler handler = args.length >= 8
+                ? new MySQLHandler(args[3], Integer.parseInt(args[4]), args[5], args[6], args[7])
+                : null;
+
+        if (handler != null) {
+            handler.executeUpdate("SET SESSION cte_max_recursion_depth = " + rows);
+        }
+
+        installGcListener();
+        long start = System.nanoTime();
+
+        long checksum;
+        long loadNanos;
+        long scanNanos;
+        long randomNanos;
+        int spilled = 0;
+
+        if (spill) {
+            try (SpillableResult result = handler != null
+                    ? handler.executeSpillableQuery(heapBudgetBytes, QUERY, rows)
+                    : generateSpillable(rows, heapBudgetBytes)) {
+                loadNanos = System.nanoTime() - start;
+                spilled = result.getSpilledRowCount();
+
+                long scanStart = System.nanoTime();
+                checksum = 0;
+                for (Map<String, Object> row : result) {
+                    checksum += ((Number) row.get("id")).longValue();
+                }
+                scanNanos = System.nanoTime() - scanStart;
+
+                long randomStart = System.nanoTime();
+                Random random = new Random(42);
+                for (int i = 0; i < RANDOM_READS; i++) {
+                    checksum += ((Number) result.get(random.nextInt(result.size())).get("id")).longValue();
+                }
+                randomNanos = System.nanoTime() - randomStart;
+            }
+        } else {
+            List<Map<String, Object>> result = handler != null
+                    ? handler.executeQuery(QUERY, rows)
+                    : generateHeap(rows);
+            loadNanos = System.nanoTime() - start;
+
+            long scanStart = System.nanoTime();
+            checksum = 0;
+            for (Map<String, Object> row : result) {
+                checksum += ((Number) row.get("id")).longValue();
+            }
+            scanNanos = System.nanoTime() - scanStart;
+
+            long randomStart = System.nanoTime();
+            Random random = new Random(42);
+            for (int i = 0; i < RANDOM_READS; i++) {
+                checksum += ((Number) result.get(random.nextInt(result.size())).get("id")).longValue();
+            }
+            randomNanos = System.nanoTime() - randomStart;
+        }
+
+        if (handler != null) {
+            handler.close();
+        }
+
+        System.out.printf("approach=%s source=%s rows=%d spilled=%d checksum=%d%n",
+                args[0], handler != null ? "mysql" : "synthetic", rows, spilled, checksum);
+        System.out.printf("load:   %8d ms  %,12.0f rows/s%n", loadNanos / 1_000_000, rows / (loadNanos / 1e9));
+        System.out.printf("scan:   %8d ms  %,12.0f rows/s%n", scanNanos / 1_000_000, rows / (scanNanos / 1e9));
+        System.out.printf("random: %8d ms  %,12.0f rows/s%n", randomNanos / 1_000_000, RANDOM_READS / (randomNanos / 1e9));
+        System.out.printf("gc:     %8d pauses, %d ms total pause, %d ms max pause%n",
+                gcCount.get(), gcTotalMillis.get(), gcMaxMillis.get());
+    }
+
+    private static List<Map<String, Object>> generateHeap(int rows) {
+        // Same row representation as MySQLHandler.executeQuery
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int i = 1; i <= rows; i++) {
+            Object[] values = syntheticRow(i);
+            Map<String, Object> row = new HashMap<>();
+            for (int column = 0; column < values.length; column++) {
+                row.put(COLUMNS.get(column), values[column]);
+            }
+            results.add(row);
+        }
+        return results;
+    }
+
+    private static SpillableResult generateSpillable(int rows, long heapBudgetBytes) throws Exception {
+        SpillableResult results = new SpillableResult(COLUMNS, heapBudgetBytes);
+        for (int i = 1; i <= rows; i++) {
+            results.addRow(syntheticRow(i));
+        }
+        return results;
+    }
+
+    private static Object[] syntheticRow(long n) {
+        return new Object[]{n, "row-" + n, BigDecimal.valueOf(n * 125, 2), LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(n)};
+    }
+
+    /**
+     * Records the duration of every stop-the-world pause. Concurrent collectors (ZGC,
+     * Shenandoah) publish their concurrent cycles on a separate "... Cycles" bean next
+     * to a "... Pauses" bean, so the cycle beans are skipped. All remaining beans report
+     * pauses: G1 young/old and its concurrent bean's remark/cleanup pauses, Parallel
+     * and Serial collections.
+     */
+    private static void installGcListener() {
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean.getName().endsWith(" Cycles")) {
+                continue;
+            }
+            ((NotificationEmitter) bean).addNotificationListener((notification, handback) -> {
+                if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    return;
+                }
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                long duration = info.getGcInfo().getDuration();
+                gcCount.incrementAndGet();
+                gcTotalMillis.addAndGet(duration);
+                gcMaxMillis.accumulateAndGet(duration, Math::max);
+            }, null, null);
+        }
+    }
+}
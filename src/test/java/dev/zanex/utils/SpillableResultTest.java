@@ -0,0 +1,161 @@
+package dev.zanex.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillableResultTest {
+    @TempDir
+    Path spillDirectory;
+
+    private static final List<String> COLUMNS = List.of(
+            "null", "string", "int", "long", "double", "float", "short", "byte", "boolean",
+            "decimal", "bigint", "bytes", "date", "time", "timestamp",
+            "localDate", "localTime", "localDateTime", "offsetDateTime", "offsetTime", "zonedDateTime",
+            "zonedDateTimeOverlap", "instant");
+
+    private static Object[] sampleRow(int i) {
+        Timestamp timestamp = new Timestamp(1_700_000_000_000L + i);
+        timestamp.setNanos(123_456_789);
+
+        return new Object[]{
+                null,
+                "row " + i + " äöü €",
+                i,
+                Long.MAX_VALUE - i,
+                i / 3.0,
+                i / 7.0f,
+                (short) i,
+                (byte) i,
+                i % 2 == 0,
+                new BigDecimal("12345678901234567890.12345").add(BigDecimal.valueOf(i)),
+                BigInteger.ONE.shiftLeft(100).negate().add(BigInteger.valueOf(i)),
+                new byte[]{(byte) i, 0, -1},
+                new Date(1_700_000_000_000L),
+                new Time(45_296_000L),
+                timestamp,
+                LocalDate.of(2024, 2, 29).plusDays(i),
+                LocalTime.of(23, 59, 59, 999_999_999),
+                LocalDateTime.of(1999, 12, 31, 23, 59, 59, 1).plusSeconds(i),
+                OffsetDateTime.of(2024, 1, 1, 12, 0, 0, 5, ZoneOffset.ofHoursMinutes(5, 30)),
+                OffsetTime.of(8, 15, 0, 0, ZoneOffset.ofHours(-7)),
+                ZonedDateTime.of(2024, 3, 31, 2, 30, 0, 0, ZoneId.of("Europe/Berlin")),
+                // 02:30 happens twice when DST ends, this is the second occurrence at +01:00
+                ZonedDateTime.of(2024, 10, 27, 2, 30, 0, 0, ZoneId.of("Europe/Berlin")).withLaterOffsetAtOverlap(),
+                Instant.ofEpochSecond(-1, 999_999_999)
+        };
+    }
+
+    @Test
+    void spilledRowsRoundTripEveryType() throws IOException {
+        try (SpillableResult result = new SpillableResult(COLUMNS, 0, spillDirectory)) {
+            for (int i = 0; i < 100; i++) {
+                result.addRow(sampleRow(i));
+            }
+
+            assertEquals(100, result.getSpilledRowCount());
+            for (int i = 0; i < 100; i++) {
+                Object[] expected = sampleRow(i);
+                Object[] actual = result.getValues(i);
+                for (int column = 0; column < expected.length; column++) {
+                    if (expected[column] != null) {
+                        assertEquals(expected[column].getClass(), actual[column].getClass(), COLUMNS.get(column));
+                    }
+                }
+                assertArrayEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    void heapRowsAndSpilledRowsKeepInsertionOrder() throws IOException {
+        try (SpillableResult result = new SpillableResult(List.of("id", "name"), 2_000, spillDirectory)) {
+            for (int i = 0; i < 1_000; i++) {
+                result.addRow(new Object[]{i, "name-" + i});
+            }
+
+            assertEquals(1_000, result.size());
+            assertTrue(result.getSpilledRowCount() > 0);
+            assertTrue(result.getSpilledRowCount() < result.size());
+
+            int expected = 0;
+            for (Map<String, Object> row : result) {
+                assertEquals(expected, row.get("id"));
+                assertEquals("name-" + expected, row.get("name"));
+                expected++;
+            }
+            assertEquals(1_000, expected);
+
+            assertEquals(List.of("id", "name"), new ArrayList<>(result.get(999).keySet()));
+            assertEquals(500, result.get(500).get("id"));
+        }
+    }
+
+    @Test
+    void rowsLargerThanTheScratchBufferAreSpilled() throws IOException {
+        String large = "x".repeat(100_000);
+        try (SpillableResult result = new SpillableResult(List.of("value"), 0, spillDirectory)) {
+            result.addRow(new Object[]{large});
+            result.addRow(new Object[]{"small"});
+
+            assertEquals(large, result.get(0).get("value"));
+            assertEquals("small", result.get(1).get("value"));
+        }
+    }
+
+    @Test
+    void addRowCopiesTheCallersArray() throws IOException {
+        try (SpillableResult result = new SpillableResult(List.of("value"), Long.MAX_VALUE, spillDirectory)) {
+            Object[] row = {"first"};
+            result.addRow(row);
+            row[0] = "second";
+            result.addRow(row);
+
+            assertEquals("first", result.get(0).get("value"));
+            assertEquals("second", result.get(1).get("value"));
+        }
+    }
+
+    @Test
+    void unsupportedTypesAreRejectedOnBothPaths() throws IOException {
+        try (SpillableResult heap = new SpillableResult(List.of("value"), Long.MAX_VALUE, spillDirectory);
+             SpillableResult spill = new SpillableResult(List.of("value"), 0, spillDirectory)) {
+            assertThrows(IllegalArgumentException.class, () -> heap.addRow(new Object[]{new StringBuilder("x")}));
+            assertThrows(IllegalArgumentException.class, () -> spill.addRow(new Object[]{new StringBuilder("x")}));
+            assertEquals(0, heap.size());
+            assertEquals(0, spill.size());
+
+            spill.addRow(new Object[]{"ok"});
+            assertEquals("ok", spill.get(0).get("value"));
+        }
+    }
+
+    @Test
+    void closeDeletesTheSpillFile() throws IOException {
+        SpillableResult result = new SpillableResult(List.of("value"), 0, spillDirectory);
+        result.addRow(new Object[]{1});
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(1, files.count());
+        }
+
+        result.close();
+
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+        assertThrows(IllegalStateException.class, () -> result.get(0));
+    }
+}